@@ -1,4 +1,5 @@
 import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /** A community of humans within our COVID-19 simulator. A community can have a mixture of
  * humans exposed to COVID-19, humans infected with COVID-19 or humans that are neither exposed nor infected. */
@@ -22,6 +23,20 @@ public class Community {
     /** Number of non-exposed non-infected humans who have recently recovered from the virus currently in this community **/
     private int numRecovered;
 
+    /** Number of days that have been simulated in this community so far **/
+    private int day;
+
+    /** Identifier of this community, unique among all communities created by the program. Recorded in the
+     * EventLog since the ids of humans are only unique within their community **/
+    private int id;
+
+    /** Identifier of the next community to be created. Communities can be created by several threads at once **/
+    private static final AtomicInteger nextId = new AtomicInteger();
+
+    /** Random number generator used for every random decision made in this community. Seeding it makes
+     * the whole simulation reproducible **/
+    private Random rand;
+
     /** Helper method to assert the class invariants. Ensure that this object satisfies its class invariants . **/
     private void assertInv() {
 
@@ -47,6 +62,15 @@ public class Community {
      * 'numInfectedOmicron' humans infected with the Omicron variant, and 'numHealthy' humans that are non-exposed non-infected. **/
     public Community(int numExposedAlpha, int numExposedDelta, int numExposedOmicron, int numInfectedAlpha,
             int numInfectedDelta, int numInfectedOmicron, int numHealthy) {
+        this(numExposedAlpha, numExposedDelta, numExposedOmicron, numInfectedAlpha, numInfectedDelta,
+                numInfectedOmicron, numHealthy, new Random());
+    }
+
+    /** Constructor: creates a new Community with the same starting humans as above in which every random decision
+     * is made by 'rand'. Two Communities created with the same arguments and identically seeded 'rand' simulate
+     * exactly the same days. **/
+    public Community(int numExposedAlpha, int numExposedDelta, int numExposedOmicron, int numInfectedAlpha,
+            int numInfectedDelta, int numInfectedOmicron, int numHealthy, Random rand) {
 
         // Check preconditions (arguments cannot be negative values)
         assert (numExposedAlpha>=0);
@@ -56,12 +80,16 @@ public class Community {
         assert (numInfectedDelta>=0);
         assert (numInfectedOmicron>=0);
         assert (numHealthy>=0);
+        assert (rand!=null);
 
         // Assign fields
+        this.rand = rand;
+        id = nextId.getAndIncrement();
         this.numExposed = numExposedAlpha + numExposedDelta + numExposedOmicron;
         this.numInfected = numInfectedAlpha + numInfectedDelta + numInfectedOmicron;
         this.numHealthy = numHealthy;
         numRecovered = 0;
+        day = 0;
         population = this.numExposed + this.numInfected + this.numHealthy;
 
         // Create an array to store the humans in the community
@@ -69,31 +97,31 @@ public class Community {
 
         for (int i=0; i<numExposedAlpha; ++i) {
             // store humans exposed to the Alpha variant
-            humans[i] = new Human(true, 1, false, 0, "Alpha");
+            humans[i] = new Human(this, i, true, 1, false, 0, "Alpha");
         }
         for (int j=numExposedAlpha; j<numExposedAlpha+numExposedDelta; ++j) {
             // store humans exposed to the Delta variant
-            humans[j] = new Human(true, 1, false, 0, "Delta");
+            humans[j] = new Human(this, j, true, 1, false, 0, "Delta");
         }
         for (int k=numExposedAlpha+numExposedDelta; k<numExposed; ++k) {
             // store humans exposed to the Omicron variant
-            humans[k] = new Human(true, 1, false, 0, "Omicron");
+            humans[k] = new Human(this, k, true, 1, false, 0, "Omicron");
         }
         for (int i=numExposed; i<numExposed+numInfectedAlpha; ++i) {
             // store humans infected with the Alpha variant
-            humans[i] = new Human(false, 0, true, 1, "Alpha");
+            humans[i] = new Human(this, i, false, 0, true, 1, "Alpha");
         }
         for (int j=numExposed+numInfectedAlpha; j<numExposed+numInfectedAlpha+numInfectedDelta; ++j) {
             // store humans infected with the Delta variant
-            humans[j] = new Human(false, 0, true, 1, "Delta");
+            humans[j] = new Human(this, j, false, 0, true, 1, "Delta");
         }
         for (int k=numExposed+numInfectedAlpha+numInfectedDelta; k<numExposed+numInfected; ++k) {
             // store humans infected with the Omicron variant
-            humans[k] = new Human(false, 0, true, 1, "Omicron");
+            humans[k] = new Human(this, k, false, 0, true, 1, "Omicron");
         }
         for (int i=numExposed+numInfected; i<population; ++i) {
             // store healthy humans
-            humans[i] = new Human(false, 0, false, 0, null);
+            humans[i] = new Human(this, i, false, 0, false, 0, null);
         }
 
         // Shuffle the 'humans' array and make sure all humans are positioned at random indexes
@@ -120,6 +148,12 @@ public class Community {
     /** Returns the total number of humans who are currently recovered from COVID-19 in the community **/
     public int getNumRecovered() { return numRecovered; }
 
+    /** Returns the number of days that have been simulated in the community so far **/
+    public int getDay() { return day; }
+
+    /** Returns the identifier of the community **/
+    public int getId() { return id; }
+
     /** This method shuffles the array of Human objects in "humanArray" using the Fisher-Yates
      * shuffling algorithm. Ensures that exposed, infected and non-exposed non-infected humans are
      * positioned randomly in the array to model the random distribution of physical positions of
@@ -129,7 +163,6 @@ public class Community {
         // Check precondition
         assertInv();
 
-        Random rand = new Random();
         // Traverse the 'humans' array from the end and swap elements randomly
         for (int i= humans.length-1; i>0; --i) {
             // Generate a random index number between 0 and i
@@ -153,12 +186,15 @@ public class Community {
         // Check precondition
         assertInv();
 
+        // Start a new day. Events recorded in the EventLog from now on belong to this day
+        day += 1;
+
         // Traverse through the array of humans to make each human encounter other humans in the array
         for (int i=0; i<population-1; ++i) {
             int j = i+1;
             while (humans[i].getEncounters()<16 && j<population) {
                 // Assume that each human has a 0.5 probability of coming into contact with another human in the community
-                double contactProb = Math.random();
+                double contactProb = rand.nextDouble();
                 if (contactProb>=0.5) {
                     // humans[i] and humans[j] are in close contact
                     humans[i].contact(humans[j]);
@@ -197,7 +233,7 @@ public class Community {
         assertInv();
 
         for (int i=0; i<population; ++i) {
-            humans[i].updateDay();
+            humans[i].updateDay(rand);
         }
 
         // Reassert class invariants
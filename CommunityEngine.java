@@ -0,0 +1,33 @@
+import java.util.Random;
+
+/** The reference simulation engine of our COVID-19 simulator. Simulates each day exactly like the Simulator does,
+ * using the Community and Human classes. **/
+public class CommunityEngine implements Engine {
+
+    /** Runs one simulation of 'totalDays' days with a Community seeded by 'seed' and returns its trajectory **/
+    public int[][] simulate(int[] initial, int totalDays, long seed) {
+        // Check preconditions
+        assert (initial!=null && initial.length==7);
+        assert (totalDays>=0);
+
+        Community comm = new Community(initial[0], initial[1], initial[2], initial[3], initial[4], initial[5],
+                initial[6], new Random(seed));
+
+        int[][] trajectory = new int[totalDays+1][METRICS];
+        record(comm, trajectory[0]);
+        for (int i=1; i<=totalDays; ++i) {
+            comm.communityDaily();
+            record(comm, trajectory[i]);
+            comm.communityUpdateDay();
+        }
+        return trajectory;
+    }
+
+    /** Stores the current number of infected, exposed and recovered humans of 'comm' in 'day' */
+    private static void record(Community comm, int[] day) {
+        day[INFECTED] = comm.getNumInfected();
+        day[EXPOSED] = comm.getNumExposed();
+        day[RECOVERED] = comm.getNumRecovered();
+    }
+
+}
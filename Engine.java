@@ -0,0 +1,26 @@
+/** A simulation engine for our COVID-19 simulator. An engine simulates the spread of COVID-19 in a community
+ * over a given period of days and reports the number of infected, exposed and recovered humans at each day.
+ * CommunityEngine is the reference engine; any faster engine must produce the same epidemic dynamics,
+ * which is checked by the Validator. Engines must have a public constructor without arguments. The Validator
+ * creates a new engine for each replicate, so 'simulate' does not need to be safe to call from several threads. **/
+public interface Engine {
+
+    /** Index of the number of infected humans in each day of a trajectory */
+    int INFECTED = 0;
+
+    /** Index of the number of exposed humans in each day of a trajectory */
+    int EXPOSED = 1;
+
+    /** Index of the number of recovered humans in each day of a trajectory */
+    int RECOVERED = 2;
+
+    /** Number of values reported for each day of a trajectory */
+    int METRICS = 3;
+
+    /** Runs one simulation of 'totalDays' days and returns its trajectory. 'initial' holds the 7 starting values
+     * of a Community in the order of its constructor arguments. Every random decision must be derived from 'seed'
+     * so that the same seed gives the same trajectory. The trajectory has 'totalDays'+1 rows, one for day 0 and
+     * one for each simulated day, each holding the INFECTED, EXPOSED and RECOVERED values of that day. **/
+    int[][] simulate(int[] initial, int totalDays, long seed);
+
+}
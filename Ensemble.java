@@ -0,0 +1,63 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/** An ensemble of seeded simulations of COVID-19 spread in the same community over a given period of days. The
+ * runs are simulated in parallel with the reference CommunityEngine and each run is written to a trajectory file as
+ * soon as it has been simulated. The file can then be queried with the TrajectoryReader. **/
+public class Ensemble {
+
+    /** The main program for an ensemble of simulations. Accepts the same 8 integer arguments as the Simulator,
+     * followed by the number of runs, the seed of the first run and the path of the trajectory file to write.
+     * Run r is seeded with the given seed plus r **/
+    public static void main(String[] args) throws Exception {
+
+        // Check the number of input arguments given
+        if (args.length!=11) {
+            throw new IllegalArgumentException("Incorrect number of arguments. Please enter the 8 numbers given to the \n"
+                    + " Simulator, followed by the number of runs, the seed of the first run and the path of the \n"
+                    + " trajectory file to write");
+        }
+
+        // Convert input arguments
+        int[] initial = new int[7];
+        for (int i=0; i<7; ++i) {
+            initial[i] = Integer.parseInt(args[i]);
+        }
+        int totalDays = Integer.parseInt(args[7]);
+        int runs = Integer.parseInt(args[8]);
+        long seed = Long.parseLong(args[9]);
+
+        ExecutorService pool = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+        TrajectoryWriter writer = new TrajectoryWriter(args[10]);
+        try {
+            List<Callable<Void>> tasks = new ArrayList<>();
+            for (int r=0; r<runs; ++r) {
+                int run = r;
+                tasks.add(() -> {
+                    writer.addRun(run, new CommunityEngine().simulate(initial, totalDays, seed+run));
+                    return null;
+                });
+            }
+            for (Future<Void> f : pool.invokeAll(tasks)) {
+                // Rethrow the first failure of any run
+                f.get();
+            }
+        } catch (Exception e) {
+            // Keep the failure of the run as the cause even if closing the file fails too
+            pool.shutdown();
+            try {
+                writer.close();
+            } catch (Exception closeFailure) {
+                e.addSuppressed(closeFailure);
+            }
+            throw e;
+        }
+        pool.shutdown();
+        writer.close();
+    }
+
+}
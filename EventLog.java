@@ -0,0 +1,273 @@
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPOutputStream;
+
+/** An optional log of the health status transitions of every human within our COVID-19 simulator. The log
+ * records who exposed whom, on which day and with which variant, as well as infections, recoveries and the
+ * end of incubation periods that did not lead to an infection.
+ *
+ * Each thread that records events writes into its own lock-free ring buffer. A background thread drains all
+ * ring buffers into a gzip-compressed file made of fixed-width 20 byte records (big-endian):
+ *   byte 0      event type (EXPOSURE, INFECTION, RECOVERY or INCUBATION_EXPIRY)
+ *   byte 1      variant code (0 = none, 1 = Alpha, 2 = Delta, 3 = Omicron)
+ *   bytes 2-3   unused, always 0
+ *   bytes 4-7   day of the simulation in the community
+ *   bytes 8-11  id of the community the humans belong to
+ *   bytes 12-15 id of the source human (the infected human for EXPOSURE, -1 otherwise)
+ *   bytes 16-19 id of the target human (the human whose health status changed)
+ * Human ids are only unique within a community, so a human is identified by its community id and its own id.
+ * The file starts with the 4 byte magic number "CVEL" followed by a 4 byte format version.
+ *
+ * The log is disabled by default. When disabled, recording an event costs a single call of 'isEnabled'.
+ * When enabled, recording an event never blocks: if a ring buffer is full because the background thread
+ * cannot keep up, the event is dropped and counted so that the contact loop is never slowed down. If the
+ * background thread fails to write the file, recording stops and 'close' throws the failure. **/
+public class EventLog {
+
+    /** A non-exposed non-infected or exposed human is (re-)exposed to the virus by an infected human */
+    public static final int EXPOSURE = 1;
+
+    /** An exposed human turns infected */
+    public static final int INFECTION = 2;
+
+    /** An infected human recovers */
+    public static final int RECOVERY = 3;
+
+    /** An exposed human ends their incubation period without getting infected */
+    public static final int INCUBATION_EXPIRY = 4;
+
+    /** Magic number at the start of every event log file ("CVEL") */
+    public static final int MAGIC = 0x4356454C;
+
+    /** Version of the record format described above */
+    public static final int VERSION = 2;
+
+    /** Number of events each ring buffer can hold. Must be a power of 2 */
+    private static final int CAPACITY = 1 << 16;
+
+    /** True if events are being recorded. Only changed by 'start' and 'close', which must be called
+     * before and after the simulation runs respectively, and by the background thread if it fails **/
+    private static boolean enabled = false;
+
+    /** True while the background thread should keep draining the ring buffers */
+    private static volatile boolean running = false;
+
+    /** The exception that stopped the background thread from writing the file. Null if it has not failed */
+    private static volatile IOException failure;
+
+    /** The background thread that drains the ring buffers. Null if the log has not been started */
+    private static Thread drainer;
+
+    /** The compressed output file of the log. Null if the log has not been started */
+    private static DataOutputStream out;
+
+    /** All ring buffers that have been created by recording threads since the log was started */
+    private static final CopyOnWriteArrayList<Ring> rings = new CopyOnWriteArrayList<>();
+
+    /** Incremented each time the log is started so that ring buffers left over from a previous log are replaced */
+    private static int generation = 0;
+
+    /** The ring buffer of the current thread */
+    private static final ThreadLocal<Ring> localRing = new ThreadLocal<>();
+
+    /** A single-producer single-consumer ring buffer of events. Only the owning thread writes events and
+     * only the background thread reads them, so neither side needs a lock. **/
+    private static final class Ring {
+
+        /** The value of 'generation' when this ring buffer was created */
+        private final int gen = generation;
+
+        /** Three longs per event: type, variant and day in the first; community id in the second; source and
+         * target ids in the third */
+        private final long[] slots = new long[3*CAPACITY];
+
+        /** Number of events read by the background thread so far */
+        private final AtomicLong head = new AtomicLong();
+
+        /** Number of events written by the owning thread so far */
+        private final AtomicLong tail = new AtomicLong();
+
+        /** The owning thread's last known value of 'head'. Avoids reading 'head' for every event */
+        private long cachedHead;
+
+        /** Number of events dropped because this ring buffer was full */
+        private long dropped;
+
+        /** Adds one event to this ring buffer, or drops it if this ring buffer is full */
+        private void put(long first, int community, long second) {
+            long t = tail.get();
+            if (t-cachedHead>=CAPACITY) {
+                cachedHead = head.get();
+                if (t-cachedHead>=CAPACITY) {
+                    dropped += 1;
+                    return;
+                }
+            }
+            int idx = (int) (t & (CAPACITY-1)) * 3;
+            slots[idx] = first;
+            slots[idx+1] = community;
+            slots[idx+2] = second;
+            // Publish the event to the background thread
+            tail.lazySet(t+1);
+        }
+
+        /** Writes all events currently in this ring buffer to 'os'. Returns the number of events written */
+        private int drainTo(DataOutputStream os) throws IOException {
+            long h = head.get();
+            long t = tail.get();
+            for (long i=h; i<t; ++i) {
+                int idx = (int) (i & (CAPACITY-1)) * 3;
+                os.writeLong(slots[idx]);
+                os.writeInt((int) slots[idx+1]);
+                os.writeLong(slots[idx+2]);
+            }
+            // Hand the read slots back to the owning thread
+            head.lazySet(t);
+            return (int) (t-h);
+        }
+    }
+
+    /** Starts recording events into a new compressed file at 'path'. The log must not already be enabled **/
+    public static synchronized void start(String path) throws IOException {
+        // Check preconditions
+        assert (path!=null && !path.isEmpty());
+        assert (drainer==null);
+
+        out = new DataOutputStream(new BufferedOutputStream(new GZIPOutputStream(new FileOutputStream(path), 1<<16), 1<<16));
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        rings.clear();
+        generation += 1;
+        failure = null;
+
+        drainer = new Thread(() -> {
+            try {
+                while (running) {
+                    if (drainAll()==0) {
+                        // Nothing to write, give the recording threads time to fill their ring buffers
+                        Thread.sleep(1);
+                    }
+                }
+            } catch (IOException e) {
+                // Stop recording events that can no longer be written. 'close' reports the failure
+                failure = e;
+                enabled = false;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }, "EventLog-drainer");
+        drainer.setDaemon(true);
+        enabled = true;
+        running = true;
+        drainer.start();
+    }
+
+    /** Stops recording events, writes all remaining events and closes the file. Returns the total number of
+     * events that were dropped because a ring buffer was full. Throws the exception that stopped the background
+     * thread if it failed to write the file. Does nothing if the log has not been started **/
+    public static synchronized long close() throws IOException {
+        if (drainer==null) {
+            return 0;
+        }
+        enabled = false;
+        running = false;
+        try {
+            drainer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        long dropped = 0;
+        for (Ring r : rings) {
+            dropped += r.dropped;
+        }
+        DataOutputStream os = out;
+        IOException failed = failure;
+        drainer = null;
+        out = null;
+        failure = null;
+
+        try {
+            if (failed==null) {
+                // Write the events recorded since the background thread last drained the ring buffers
+                for (Ring r : rings) {
+                    r.drainTo(os);
+                }
+            }
+            os.close();
+        } catch (IOException e) {
+            if (failed==null) {
+                throw e;
+            }
+            failed.addSuppressed(e);
+        } finally {
+            rings.clear();
+        }
+
+        if (failed!=null) {
+            throw failed;
+        }
+        return dropped;
+    }
+
+    /** Writes the events of all ring buffers to the file. Returns the number of events written */
+    private static int drainAll() throws IOException {
+        int written = 0;
+        for (Ring r : rings) {
+            written += r.drainTo(out);
+        }
+        return written;
+    }
+
+    /** Returns true if events are being recorded. Callers check it before building an event so that no work
+     * is done when the log is disabled **/
+    public static boolean isEnabled() { return enabled; }
+
+    /** Returns the ring buffer of the current thread for the current log, creating it if needed */
+    private static Ring ring() {
+        Ring r = localRing.get();
+        if (r==null || r.gen!=generation) {
+            r = new Ring();
+            localRing.set(r);
+            rings.add(r);
+        }
+        return r;
+    }
+
+    /** Records an event of type 'type' on day 'day' of community 'community' in which human 'source' changed the
+     * health status of human 'target' with variant 'variant'. 'source' is -1 if no other human was involved. Callers should check 'isEnabled'
+     * first so that no work is done when the log is disabled **/
+    public static void record(int type, int community, int day, int source, int target, String variant) {
+        // Check preconditions
+        assert (type>=EXPOSURE && type<=INCUBATION_EXPIRY);
+        assert (day>=0);
+
+        if (failure!=null) {
+            // The background thread can no longer write the file
+            return;
+        }
+        Ring r = ring();
+        long first = ((long) type << 56) | ((long) variantCode(variant) << 48) | (day & 0xFFFFFFFFL);
+        long second = ((long) source << 32) | (target & 0xFFFFFFFFL);
+        r.put(first, community, second);
+    }
+
+    /** Returns the code of the COVID-19 variant 'variant' used in the records of the log */
+    public static int variantCode(String variant) {
+        if (variant==null) {
+            return 0;
+        } else if (variant.equals("Alpha")) {
+            return 1;
+        } else if (variant.equals("Delta")) {
+            return 2;
+        } else if (variant.equals("Omicron")) {
+            return 3;
+        }
+        return 0;
+    }
+
+}
@@ -1,3 +1,5 @@
+import java.util.Random;
+
 /** A human within our COVID-19 simulator. Each Human can either be exposed to the virus, infected
  * with the virus or neither */
 
@@ -37,6 +39,12 @@ public class Human {
      * 0 and less than or equal to 16 **/
     private int encounters;
 
+    /** Identifier of this human within its community. Used to record who exposed whom in the EventLog */
+    private int id;
+
+    /** The community this human belongs to. Gives the community id and the day of the events recorded in the EventLog */
+    private Community community;
+
     /** Helper method to assert the class invariants. Ensure that this object satisfies its class invariants . **/
     private void assertInv() {
         // If this human is exposed, ensure that daysExposure is of an appropriate value as specified above
@@ -76,12 +84,15 @@ public class Human {
         assert (encounters>=0 && encounters<=16);
     }
 
-    /** Constructor: creates a new Human. If exposed is true, Human has been exposed for 'daysExposure' days.
-     * If infected is true, Human has been infected for 'daysInfected' days. 'variant' will be the COVID-19
-     * variant that the Human is exposed to or infected with (can be null if Human is neither exposed or infected) **/
-    public Human(boolean exposed, int daysExposure, boolean infected, int daysInfected, String variant) {
+    /** Constructor: creates a new Human with identifier 'id' in community 'community'. If exposed is true, Human has
+     * been exposed for 'daysExposure' days. If infected is true, Human has been infected for 'daysInfected' days.
+     * 'variant' will be the COVID-19 variant that the Human is exposed to or infected with (can be null if Human is
+     * neither exposed or infected) **/
+    public Human(Community community, int id, boolean exposed, int daysExposure, boolean infected, int daysInfected,
+            String variant) {
 
         // Check preconditions
+        assert (community!=null);
         if (exposed) {
             assert (daysExposure>=1 && daysExposure<=7);
             assert (!infected && daysInfected==0);
@@ -102,6 +113,8 @@ public class Human {
         }
 
         // Assign parameters
+        this.id = id;
+        this.community = community;
         this.exposed = exposed;
         this.daysExposure = daysExposure;
         this.infected = infected;
@@ -154,6 +167,9 @@ public class Human {
     /** Returns the number of other humans that this human has had a close contact with in a day **/
     public int getEncounters() { return encounters; }
 
+    /** Returns the identifier of this human within its community **/
+    public int getId() { return id; }
+
     /** This Human comes into contact with Human 'h'. Either human can be exposed or infected or neither.
      * A Human that is not exposed and not infected can be someone who has recovered in the past or
      * has never been infected with the virus at all. This method determines the health status
@@ -199,12 +215,18 @@ public class Human {
             h.exposed = true;
             h.daysExposure = 1;
             h.variant = variant;
+            if (EventLog.isEnabled()) {
+                EventLog.record(EventLog.EXPOSURE, community.getId(), community.getDay(), id, h.id, variant);
+            }
         } else {
             // Human 'h' is infected while this Human is non-exposed non-infected.
             // this Human becomes exposed
             exposed = true;
             daysExposure = 1;
             variant = h.variant;
+            if (EventLog.isEnabled()) {
+                EventLog.record(EventLog.EXPOSURE, community.getId(), community.getDay(), h.id, id, variant);
+            }
         }
 
         // Assert class invariants
@@ -228,9 +250,15 @@ public class Human {
         if (h.exposed) {
             h.daysExposure = 1;
             h.variant = variant;
+            if (EventLog.isEnabled()) {
+                EventLog.record(EventLog.EXPOSURE, community.getId(), community.getDay(), id, h.id, variant);
+            }
         } else {
             daysExposure = 1;
             variant = h.variant;
+            if (EventLog.isEnabled()) {
+                EventLog.record(EventLog.EXPOSURE, community.getId(), community.getDay(), h.id, id, variant);
+            }
         }
 
         // Assert class invariants
@@ -239,8 +267,8 @@ public class Human {
     }
 
     /** Updates the day in the simulation. Simulation changes to a different day and determines
-     * the health status of this Human after 1 day **/
-    public void updateDay() {
+     * the health status of this Human after 1 day. 'rand' is the random number generator of the community **/
+    public void updateDay(Random rand) {
 
         assertInv();
 
@@ -252,7 +280,7 @@ public class Human {
             }
         } else if (exposed) {
             // Call helper function for exposed Human
-            updateExposedDay();
+            updateExposedDay(rand);
         } else if (infected) {
             // Call helper function for infected Human
             updateInfectedDay();
@@ -267,15 +295,18 @@ public class Human {
 
     /** Updates the day in the simulation for an exposed human. Simulations changes to a different day and
      * determines the health status of an exposed human after 1 day. Exposed human either remains exposed and
-     * continues with their incubation period, ends their incubation period and does not get infected or gets infected */
-    public void updateExposedDay() {
+     * continues with their incubation period, ends their incubation period and does not get infected or gets infected.
+     * 'rand' is the random number generator of the community */
+    public void updateExposedDay(Random rand) {
 
         // Check precondition
         assert (exposed && daysExposure >=1);
         assertInv();
 
         // Risk of infection (turning infected from exposed)
-        double infectionRisk = Math.random();
+        double infectionRisk = rand.nextDouble();
+        // Variant this human is exposed to, kept for the EventLog since it is cleared if the incubation period ends
+        String exposedVariant = variant;
 
         if (!recovered) {
             // This human has never been infected before
@@ -418,6 +449,15 @@ public class Human {
             }
         }
 
+        // Record the end of the incubation period, whether this human turned infected or not
+        if (EventLog.isEnabled()) {
+            if (infected) {
+                EventLog.record(EventLog.INFECTION, community.getId(), community.getDay(), -1, id, exposedVariant);
+            } else if (!exposed) {
+                EventLog.record(EventLog.INCUBATION_EXPIRY, community.getId(), community.getDay(), -1, id, exposedVariant);
+            }
+        }
+
         // Assert class invariants
         assertInv();
 
@@ -440,6 +480,9 @@ public class Human {
             recovered = true;
             daysInfected = 0;
             daysRecovered = 1;
+            if (EventLog.isEnabled()) {
+                EventLog.record(EventLog.RECOVERY, community.getId(), community.getDay(), -1, id, variant);
+            }
         }
 
         // Assert class invariant
@@ -1,3 +1,5 @@
+import java.io.IOException;
+
 /** An instance of a COVID-19 simulator that simulates the spread of COVID-19 in a community over a given
  * period of days **/
 
@@ -10,17 +12,19 @@ public class Simulator {
      * to the Omicron variant, the number of humans infected by the Alpha variant, the number of humans
      * infected by the Delta variant, the number of humans infected by the Omicron variant, the number
      * of humans that are non-exposed and non-infected to any variants and lastly, the number of days
-     * that the simulation should simulate over**/
-    public static void main(String[] args) {
+     * that the simulation should simulate over. An optional 9th argument gives the path of a file in which
+     * the EventLog records every exposure, infection, recovery and end of incubation period**/
+    public static void main(String[] args) throws IOException {
 
         // Check the number of input arguments given
-        if (args.length!=8) {
+        if (args.length!=8 && args.length!=9) {
             throw new IllegalArgumentException("Incorrect number of arguments. Please enter 8 numbers corresponding to \n"
                     + " the number of humans exposed to the Alpha variant, the number of humans exposed to the Delta \n"
                     + " variant, the number of humans exposed to the Omicron variant, the number of humans infected by the \n"
                     + " Alpha variant, the number of humans infected by the Delta variant, the number of humans infected \n"
                     + " by the Omicron variant, the number of humans that are non-exposed and non-infected to any variants \n"
-                    + " and lastly, the number of days that the simulation should simulate over");
+                    + " and lastly, the number of days that the simulation should simulate over. A 9th argument \n"
+                    + " can optionally be given as the path of the event log file");
         }
 
         // Convert input arguments into integers
@@ -33,6 +37,11 @@ public class Simulator {
         int numHealthy = Integer.parseInt(args[6]);
         int totalDays = Integer.parseInt(args[7]);
 
+        // Start recording events if an event log file is given
+        if (args.length==9) {
+            EventLog.start(args[8]);
+        }
+
         // Create an instance of a community
         Community comm = new Community(numExposedAlpha, numExposedDelta, numExposedOmicron, numInfectedAlpha,
                 numInfectedDelta, numInfectedOmicron, numHealthy);
@@ -55,6 +64,14 @@ public class Simulator {
             comm.communityUpdateDay();
         }
 
+        // Write the remaining events to the event log file
+        if (args.length==9) {
+            long dropped = EventLog.close();
+            if (dropped>0) {
+                System.out.println(String.format("Event log dropped %d events", dropped));
+            }
+        }
+
     }
 
 }
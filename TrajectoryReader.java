@@ -0,0 +1,300 @@
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/** Reads a trajectory file written by a TrajectoryWriter. The file is memory-mapped and only the index is read
+ * when it is opened. A query only decodes the blocks that hold the requested days, and only the column of the
+ * requested metric within them; the size of the peak of a run is answered from the index alone. **/
+public class TrajectoryReader implements AutoCloseable {
+
+    /** The memory-mapped file */
+    private MappedByteBuffer buf;
+
+    /** The open file. Kept open until the reader is closed */
+    private RandomAccessFile file;
+
+    /** Run of each block, in the order of the blocks in the file */
+    private int[] blockRun;
+
+    /** First day of each block */
+    private int[] blockFirstDay;
+
+    /** Number of days of each block */
+    private int[] blockDays;
+
+    /** Offset of each block in the file. Never larger than Integer.MAX_VALUE since the whole file is mapped */
+    private int[] blockOffset;
+
+    /** Byte length of each column of each block */
+    private int[][] blockLengths;
+
+    /** Largest value of each metric within each block */
+    private int[][] blockMax;
+
+    /** The blocks of each run, ordered by their first day */
+    private Map<Integer, int[]> runBlocks;
+
+    /** All runs in the file, in increasing order */
+    private int[] runs;
+
+    /** Constructor: opens the trajectory file at 'path' and reads its index **/
+    public TrajectoryReader(String path) throws IOException {
+        // Check precondition
+        assert (path!=null && !path.isEmpty());
+
+        file = new RandomAccessFile(path, "r");
+        FileChannel channel = file.getChannel();
+        long size = channel.size();
+        if (size<8+TrajectoryWriter.FOOTER_BYTES || size>Integer.MAX_VALUE) {
+            file.close();
+            throw new IOException("Not a trajectory file or larger than 2 GB: " + path);
+        }
+        buf = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+
+        // Check the header and the footer
+        int footer = (int) size - TrajectoryWriter.FOOTER_BYTES;
+        if (buf.getInt(0)!=TrajectoryWriter.MAGIC || buf.getInt(footer+12)!=TrajectoryWriter.MAGIC) {
+            file.close();
+            throw new IOException("Not a trajectory file: " + path);
+        }
+        if (buf.getInt(4)!=TrajectoryWriter.VERSION) {
+            file.close();
+            throw new IOException("Unsupported trajectory file version " + buf.getInt(4) + ": " + path);
+        }
+
+        // Read the index. It must fill the space between the blocks and the footer
+        long indexOffset = buf.getLong(footer);
+        int blocks = buf.getInt(footer+8);
+        if (blocks<0 || indexOffset<8 || indexOffset + (long) blocks*TrajectoryWriter.INDEX_ENTRY_BYTES!=footer) {
+            file.close();
+            throw new IOException("Not a trajectory file: corrupt index in " + path);
+        }
+        blockRun = new int[blocks];
+        blockFirstDay = new int[blocks];
+        blockDays = new int[blocks];
+        blockOffset = new int[blocks];
+        blockLengths = new int[blocks][Engine.METRICS];
+        blockMax = new int[blocks][Engine.METRICS];
+        Map<Integer, List<Integer>> lists = new HashMap<>();
+        for (int b=0; b<blocks; ++b) {
+            int pos = (int) indexOffset + b*TrajectoryWriter.INDEX_ENTRY_BYTES;
+            blockRun[b] = buf.getInt(pos);
+            blockFirstDay[b] = buf.getInt(pos+4);
+            blockDays[b] = buf.getInt(pos+8);
+            long offset = buf.getLong(pos+12);
+            long end = offset;
+            boolean negative = false;
+            for (int m=0; m<Engine.METRICS; ++m) {
+                blockLengths[b][m] = buf.getInt(pos+20+4*m);
+                blockMax[b][m] = buf.getInt(pos+20+4*Engine.METRICS+4*m);
+                end += blockLengths[b][m];
+                negative |= blockLengths[b][m]<0;
+            }
+            // The columns of the block must lie between the header and the index
+            if (negative || offset<8 || end>indexOffset) {
+                file.close();
+                throw new IOException("Not a trajectory file: block " + b + " lies outside the data in " + path);
+            }
+            blockOffset[b] = (int) offset;
+
+            // The blocks of a run are written in the order of their days, and all but the last hold BLOCK_DAYS days
+            List<Integer> list = lists.computeIfAbsent(blockRun[b], k -> new ArrayList<>());
+            if (blockDays[b]<1 || blockDays[b]>TrajectoryWriter.BLOCK_DAYS
+                    || blockFirstDay[b]!=list.size()*TrajectoryWriter.BLOCK_DAYS
+                    || (!list.isEmpty() && blockDays[list.get(list.size()-1)]!=TrajectoryWriter.BLOCK_DAYS)) {
+                file.close();
+                throw new IOException("Not a trajectory file: block " + b + " has corrupt days in " + path);
+            }
+            list.add(b);
+        }
+
+        runBlocks = new HashMap<>();
+        for (Map.Entry<Integer, List<Integer>> e : lists.entrySet()) {
+            runBlocks.put(e.getKey(), e.getValue().stream().mapToInt(Integer::intValue).toArray());
+        }
+        runs = runBlocks.keySet().stream().mapToInt(Integer::intValue).sorted().toArray();
+    }
+
+    /** Returns all runs in the file, in increasing order **/
+    public int[] getRuns() { return runs.clone(); }
+
+    /** Returns the number of days stored for run 'run', including day 0. Returns 0 if the run is not in the file **/
+    public int getDays(int run) {
+        int[] blocks = runBlocks.get(run);
+        if (blocks==null) {
+            return 0;
+        }
+        int last = blocks[blocks.length-1];
+        return blockFirstDay[last] + blockDays[last];
+    }
+
+    /** Returns the value of metric 'metric' (Engine.INFECTED, Engine.EXPOSED or Engine.RECOVERED) on day 'day'
+     * of run 'run'. The day must be stored in the file **/
+    public int getValue(int run, int day, int metric) {
+        // Check preconditions
+        assert (day>=0 && day<getDays(run));
+        assert (metric>=0 && metric<Engine.METRICS);
+
+        int[] blocks = runBlocks.get(run);
+        // Every block but the last one of a run holds exactly BLOCK_DAYS days
+        int b = blocks[day/TrajectoryWriter.BLOCK_DAYS];
+        return decode(b, metric, day-blockFirstDay[b]+1)[day-blockFirstDay[b]];
+    }
+
+    /** Returns every day of run 'run', laid out as returned by Engine.simulate. Returns an empty trajectory if
+     * the run is not in the file **/
+    public int[][] getTrajectory(int run) {
+        int[][] trajectory = new int[getDays(run)][Engine.METRICS];
+        for (int b : runBlocks.getOrDefault(run, new int[0])) {
+            for (int m=0; m<Engine.METRICS; ++m) {
+                int[] values = decode(b, m, blockDays[b]);
+                for (int d=0; d<values.length; ++d) {
+                    trajectory[blockFirstDay[b]+d][m] = values[d];
+                }
+            }
+        }
+        return trajectory;
+    }
+
+    /** Returns the largest value of metric 'metric' over all days of run 'run'. Only reads the index. Returns 0
+     * if the run is not in the file **/
+    public int getPeak(int run, int metric) {
+        // Check precondition
+        assert (metric>=0 && metric<Engine.METRICS);
+
+        int peak = 0;
+        for (int b : runBlocks.getOrDefault(run, new int[0])) {
+            peak = Math.max(peak, blockMax[b][metric]);
+        }
+        return peak;
+    }
+
+    /** Returns the runs whose largest value of metric 'metric' is greater than 'threshold', in increasing order.
+     * Only reads the index **/
+    public List<Integer> runsWithPeakAbove(int metric, int threshold) {
+        List<Integer> result = new ArrayList<>();
+        for (int run : runs) {
+            if (getPeak(run, metric)>threshold) {
+                result.add(run);
+            }
+        }
+        return result;
+    }
+
+    /** Returns the 'p'th percentile (nearest rank, 'p' between 0 and 100) of metric 'metric' on day 'day' across
+     * the runs between 'fromRun' and 'toRun', inclusive. Runs that are not in the file or that do not reach day
+     * 'day' are ignored. Returns -1 if no run is left. 'day' must not be negative **/
+    public int percentile(int metric, int day, int fromRun, int toRun, double p) {
+        // Check preconditions
+        assert (metric>=0 && metric<Engine.METRICS);
+        assert (p>=0 && p<=100);
+        if (day<0) {
+            throw new IllegalArgumentException("Day " + day + " is negative");
+        }
+
+        int[] values = new int[runs.length];
+        int n = 0;
+        for (int run : runs) {
+            if (run>=fromRun && run<=toRun && day<getDays(run)) {
+                values[n] = getValue(run, day, metric);
+                n += 1;
+            }
+        }
+        if (n==0) {
+            return -1;
+        }
+        Arrays.sort(values, 0, n);
+        int rank = (int) Math.ceil(p/100*n);
+        return values[Math.max(rank-1, 0)];
+    }
+
+    /** Closes the file. The reader cannot be used afterwards **/
+    public void close() throws IOException {
+        file.close();
+        buf = null;
+    }
+
+    /** Decodes the first 'count' values of the column of metric 'metric' in block 'b' */
+    private int[] decode(int b, int metric, int count) {
+        int pos = blockOffset[b];
+        for (int m=0; m<metric; ++m) {
+            pos += blockLengths[b][m];
+        }
+
+        int[] values = new int[count];
+        int value = 0;
+        for (int d=0; d<count; ++d) {
+            // Read one varint
+            int zigzag = 0;
+            int shift = 0;
+            byte next;
+            do {
+                next = buf.get(pos++);
+                zigzag |= (next & 0x7F) << shift;
+                shift += 7;
+            } while ((next & 0x80)!=0);
+            // Undo the zigzag encoding and add the change to the previous day
+            value += (zigzag >>> 1) ^ -(zigzag & 1);
+            values[d] = value;
+        }
+        return values;
+    }
+
+    /** Returns the index of the metric named 'name' ("infected", "exposed" or "recovered") */
+    private static int metric(String name) {
+        if (name.equals("infected")) {
+            return Engine.INFECTED;
+        } else if (name.equals("exposed")) {
+            return Engine.EXPOSED;
+        } else if (name.equals("recovered")) {
+            return Engine.RECOVERED;
+        }
+        throw new IllegalArgumentException("Unknown metric " + name + ". Please enter infected, exposed or recovered");
+    }
+
+    /** The main program to query a trajectory file. Accepts the path of the file followed by one query:
+     *   percentile METRIC DAY FROM_RUN TO_RUN P   the P'th percentile of METRIC on DAY across the runs
+     *   peak-above METRIC X                       all runs where the peak of METRIC is greater than X
+     *   run RUN                                   every day of run RUN, printed like the Simulator does
+     * where METRIC is infected, exposed or recovered **/
+    public static void main(String[] args) throws IOException {
+
+        // Check the input arguments given
+        if (args.length<2) {
+            throw new IllegalArgumentException("Incorrect number of arguments. Please enter the path of the trajectory \n"
+                    + " file followed by a query: percentile METRIC DAY FROM_RUN TO_RUN P, peak-above METRIC X or run RUN");
+        }
+
+        try (TrajectoryReader reader = new TrajectoryReader(args[0])) {
+            if (args[1].equals("percentile") && args.length==7) {
+                int value = reader.percentile(metric(args[2]), Integer.parseInt(args[3]), Integer.parseInt(args[4]),
+                        Integer.parseInt(args[5]), Double.parseDouble(args[6]));
+                System.out.println(value);
+            } else if (args[1].equals("peak-above") && args.length==4) {
+                for (int run : reader.runsWithPeakAbove(metric(args[2]), Integer.parseInt(args[3]))) {
+                    System.out.println(run);
+                }
+            } else if (args[1].equals("run") && args.length==3) {
+                int run = Integer.parseInt(args[2]);
+                if (reader.getDays(run)==0) {
+                    throw new IllegalArgumentException("Run " + run + " is not in the file");
+                }
+                int[][] trajectory = reader.getTrajectory(run);
+                for (int d=0; d<trajectory.length; ++d) {
+                    System.out.println(String.format("Day %d: %d infected, %d exposed, %d recovered", d,
+                            trajectory[d][Engine.INFECTED], trajectory[d][Engine.EXPOSED], trajectory[d][Engine.RECOVERED]));
+                }
+            } else {
+                throw new IllegalArgumentException("Unknown query. Please enter percentile METRIC DAY FROM_RUN TO_RUN P, \n"
+                        + " peak-above METRIC X or run RUN");
+            }
+        }
+    }
+
+}
@@ -0,0 +1,239 @@
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/** Writes the trajectories of many simulation runs of our COVID-19 simulator into a compact columnar file that
+ * can be queried with a TrajectoryReader without decoding the whole file.
+ *
+ * The days of each run are cut into blocks of BLOCK_DAYS days. Within a block each metric (infected, exposed,
+ * recovered) is stored as its own column: the value of the first day of the block followed by the change from
+ * each day to the next, every number zigzag-encoded as a varint. Since the numbers change little from one day to
+ * the next, most values take a single byte. Blocks are written as soon as they are full, so the days of a run can
+ * be added while it is being simulated, and the days of several runs can be added in any interleaving.
+ *
+ * File layout (big-endian):
+ *   header  MAGIC, VERSION
+ *   blocks  for each block, the bytes of its INFECTED, EXPOSED and RECOVERED columns
+ *   index   for each block: run, first day, number of days, offset of the block in the file (long),
+ *           byte length of each column, largest value of each metric within the block
+ *   footer  offset of the index (long), number of blocks, MAGIC **/
+public class TrajectoryWriter {
+
+    /** Magic number at the start and the end of every trajectory file ("CVTS") */
+    public static final int MAGIC = 0x43565453;
+
+    /** Version of the file layout described above */
+    public static final int VERSION = 1;
+
+    /** Maximum number of days in a block. Bounds the number of values decoded to read a single day */
+    public static final int BLOCK_DAYS = 64;
+
+    /** Number of bytes of each entry of the index */
+    public static final int INDEX_ENTRY_BYTES = 4 + 4 + 4 + 8 + 4*Engine.METRICS + 4*Engine.METRICS;
+
+    /** Number of bytes of the footer */
+    public static final int FOOTER_BYTES = 8 + 4 + 4;
+
+    /** The output file */
+    private DataOutputStream out;
+
+    /** Number of bytes written to the output file so far */
+    private long position;
+
+    /** Index entries of all blocks written so far, in the order of the blocks in the file */
+    private List<long[]> index;
+
+    /** The block that is currently being filled for each run that has not ended yet */
+    private Map<Integer, Block> open;
+
+    /** The runs that have ended. No more days can be added to them */
+    private Set<Integer> ended;
+
+    /** True once the file has been closed */
+    private boolean closed;
+
+    /** The days of one run that have not been written yet */
+    private static class Block {
+
+        /** The run these days belong to */
+        private final int run;
+
+        /** The day of the first value of this block */
+        private int firstDay;
+
+        /** Number of days currently in this block. Between 0 and BLOCK_DAYS */
+        private int days;
+
+        /** The encoded column of each metric */
+        private final byte[][] columns = new byte[Engine.METRICS][BLOCK_DAYS*5];
+
+        /** Number of bytes used in each column */
+        private final int[] lengths = new int[Engine.METRICS];
+
+        /** The most recent value of each metric */
+        private final int[] last = new int[Engine.METRICS];
+
+        /** The largest value of each metric within this block */
+        private final int[] max = new int[Engine.METRICS];
+
+        /** Constructor: creates an empty block of run 'run' starting at day 'firstDay' */
+        private Block(int run, int firstDay) {
+            this.run = run;
+            this.firstDay = firstDay;
+        }
+
+        /** Appends the value 'value' of metric 'metric' to this block. The first value of a block is stored as
+         * it is and every other value as the change from the previous day */
+        private void append(int metric, int value) {
+            int delta = days==0 ? value : value-last[metric];
+            lengths[metric] = putVarint(columns[metric], lengths[metric], (delta << 1) ^ (delta >> 31));
+            last[metric] = value;
+            max[metric] = days==0 ? value : Math.max(max[metric], value);
+        }
+    }
+
+    /** Constructor: creates a new trajectory file at 'path', replacing any existing file **/
+    public TrajectoryWriter(String path) throws IOException {
+        // Check precondition
+        assert (path!=null && !path.isEmpty());
+
+        out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(path), 1<<16));
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        position = 8;
+        index = new ArrayList<>();
+        open = new HashMap<>();
+        ended = new HashSet<>();
+        closed = false;
+    }
+
+    /** Adds day 'day' of run 'run' with 'infected' infected, 'exposed' exposed and 'recovered' recovered humans.
+     * The days of a run must be added in order starting at day 0, and not after the run has ended. Nothing is
+     * written if a day is added out of order, so the file stays readable. May be called by several threads at
+     * once **/
+    public synchronized void addDay(int run, int day, int infected, int exposed, int recovered) throws IOException {
+        // Check preconditions
+        assert (infected>=0 && exposed>=0 && recovered>=0);
+        if (closed) {
+            throw new IllegalStateException("The trajectory file is closed");
+        }
+        if (run<0) {
+            throw new IllegalArgumentException("Run " + run + " is negative");
+        }
+        if (ended.contains(run)) {
+            throw new IllegalStateException("Run " + run + " has already ended");
+        }
+
+        Block b = open.get(run);
+        int expected = b==null ? 0 : b.firstDay+b.days;
+        if (day!=expected) {
+            throw new IllegalArgumentException("Day " + day + " of run " + run + " is out of order, expected day "
+                    + expected);
+        }
+        if (b==null) {
+            b = new Block(run, 0);
+            open.put(run, b);
+        }
+
+        b.append(Engine.INFECTED, infected);
+        b.append(Engine.EXPOSED, exposed);
+        b.append(Engine.RECOVERED, recovered);
+        b.days += 1;
+
+        if (b.days==BLOCK_DAYS) {
+            writeBlock(b);
+            // Reuse the block for the next days of the same run
+            b.firstDay += BLOCK_DAYS;
+            b.days = 0;
+            for (int m=0; m<Engine.METRICS; ++m) {
+                b.lengths[m] = 0;
+            }
+        }
+    }
+
+    /** Adds every day of 'trajectory' as run 'run'. 'trajectory' is laid out as returned by Engine.simulate **/
+    public synchronized void addRun(int run, int[][] trajectory) throws IOException {
+        for (int d=0; d<trajectory.length; ++d) {
+            addDay(run, d, trajectory[d][Engine.INFECTED], trajectory[d][Engine.EXPOSED], trajectory[d][Engine.RECOVERED]);
+        }
+        endRun(run);
+    }
+
+    /** Ends run 'run': writes its remaining days. No more days of run 'run' can be added afterwards **/
+    public synchronized void endRun(int run) throws IOException {
+        if (closed) {
+            throw new IllegalStateException("The trajectory file is closed");
+        }
+
+        ended.add(run);
+        Block b = open.remove(run);
+        if (b!=null && b.days>0) {
+            writeBlock(b);
+        }
+    }
+
+    /** Ends every run that has not ended yet, writes the index and closes the file. The file is closed even if
+     * writing the remaining days or the index fails **/
+    public synchronized void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        // Closes 'out' in every case, keeping a failure to close as suppressed by a failure to write
+        try (DataOutputStream os = out) {
+            for (Integer run : new ArrayList<>(open.keySet())) {
+                endRun(run);
+            }
+
+            long indexOffset = position;
+            for (long[] entry : index) {
+                os.writeInt((int) entry[0]);
+                os.writeInt((int) entry[1]);
+                os.writeInt((int) entry[2]);
+                os.writeLong(entry[3]);
+                for (int i=4; i<entry.length; ++i) {
+                    os.writeInt((int) entry[i]);
+                }
+            }
+            os.writeLong(indexOffset);
+            os.writeInt(index.size());
+            os.writeInt(MAGIC);
+        } finally {
+            closed = true;
+        }
+    }
+
+    /** Writes the columns of block 'b' to the file and adds its entry to the index */
+    private void writeBlock(Block b) throws IOException {
+        long[] entry = new long[4 + 2*Engine.METRICS];
+        entry[0] = b.run;
+        entry[1] = b.firstDay;
+        entry[2] = b.days;
+        entry[3] = position;
+        for (int m=0; m<Engine.METRICS; ++m) {
+            out.write(b.columns[m], 0, b.lengths[m]);
+            position += b.lengths[m];
+            entry[4+m] = b.lengths[m];
+            entry[4+Engine.METRICS+m] = b.max[m];
+        }
+        index.add(entry);
+    }
+
+    /** Writes 'value' as an unsigned varint into 'buf' at 'pos': 7 bits per byte, lowest bits first, with the high
+     * bit of each byte set if more bytes follow. Returns the position right after the varint */
+    private static int putVarint(byte[] buf, int pos, int value) {
+        while ((value & ~0x7F)!=0) {
+            buf[pos++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        buf[pos++] = (byte) value;
+        return pos;
+    }
+
+}
@@ -0,0 +1,357 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/** A statistical equivalence harness for our COVID-19 simulator. Checks that candidate engines produce the same
+ * epidemic dynamics as the reference CommunityEngine. Runs seeded replicates of the reference engine and of each
+ * candidate engine in parallel and compares, for every day, the distributions of infected, exposed and recovered
+ * humans across replicates using two-sample Kolmogorov-Smirnov tests. The distributions of the size and the day of
+ * the peak of infections are compared the same way. A value differs between the two engines if its test rejects
+ * equivalence at the Bonferroni-corrected significance level, if the two distributions do not overlap at all, or if
+ * the absolute value of Cohen's d is above MAX_COHENS_D. A candidate passes if no value differs. The reference
+ * replicates are run once and reused for every candidate. **/
+public class Validator {
+
+    /** Family-wise significance level of all tests done for one candidate engine */
+    public static final double ALPHA = 0.01;
+
+    /** Largest absolute value of Cohen's d allowed for any compared value. The largest effect found across all
+     * days by chance alone, between two samples of the same engine, stays well below it from about 10 replicates on */
+    public static final double MAX_COHENS_D = 2.0;
+
+    /** Names of the metrics of a trajectory, in the order of their indexes in Engine */
+    private static final String[] METRIC_NAMES = {"infected", "exposed", "recovered"};
+
+    /** The result of comparing the distributions of one value across the replicates of two engines */
+    public static class Comparison {
+
+        /** Kolmogorov-Smirnov statistic: the largest distance between the two empirical distribution functions.
+         * Between 0 (identical distributions) and 1 (distributions that do not overlap) */
+        public final double ks;
+
+        /** Asymptotic p-value of the Kolmogorov-Smirnov test */
+        public final double pValue;
+
+        /** Cohen's d: difference between the means of the candidate and the reference in pooled standard deviations */
+        public final double cohensD;
+
+        /** Mean of the value across the reference replicates */
+        public final double referenceMean;
+
+        /** Mean of the value across the candidate replicates */
+        public final double candidateMean;
+
+        /** Constructor: compares the values 'reference' of the reference replicates with the values 'candidate'
+         * of the candidate replicates **/
+        public Comparison(double[] reference, double[] candidate) {
+            // Check preconditions
+            assert (reference.length>0 && candidate.length>0);
+
+            ks = ksStatistic(reference, candidate);
+            pValue = ksPValue(ks, reference.length, candidate.length);
+            referenceMean = mean(reference);
+            candidateMean = mean(candidate);
+            cohensD = cohensD(reference, candidate);
+        }
+
+        /** Returns true if the two distributions differ: the test rejects equivalence at significance level
+         * 'threshold', the distributions do not overlap at all, or the effect size is larger than MAX_COHENS_D */
+        public boolean differs(double threshold) {
+            return pValue<threshold || ks>=1.0 || Math.abs(cohensD)>MAX_COHENS_D;
+        }
+    }
+
+    /** The main program of the harness. Accepts the same 8 integer arguments as the Simulator, followed by the
+     * number of replicates to run for each engine, the seed of the first replicate and the class names of the
+     * candidate engines to validate. If no candidate is given, the reference engine is validated against itself
+     * with independent seeds, which checks the harness. Exits with status 1 if any candidate fails **/
+    public static void main(String[] args) throws Exception {
+
+        // Check the number of input arguments given
+        if (args.length<10) {
+            throw new IllegalArgumentException("Incorrect number of arguments. Please enter the 8 numbers given to the \n"
+                    + " Simulator, followed by the number of replicates to run for each engine, the seed of the first \n"
+                    + " replicate and the class names of the candidate engines to validate");
+        }
+
+        // Convert input arguments
+        int[] initial = new int[7];
+        for (int i=0; i<7; ++i) {
+            initial[i] = Integer.parseInt(args[i]);
+        }
+        int totalDays = Integer.parseInt(args[7]);
+        int replicates = Integer.parseInt(args[8]);
+        long seed = Long.parseLong(args[9]);
+        List<String> candidates = new ArrayList<>(Arrays.asList(args).subList(10, args.length));
+        if (candidates.isEmpty()) {
+            candidates.add(CommunityEngine.class.getName());
+        }
+
+        // Even samples that do not overlap at all must be able to reject equivalence, otherwise nothing can fail
+        double threshold = threshold(totalDays+1);
+        if (ksPValue(1.0, replicates, replicates)>=threshold) {
+            int needed = replicates;
+            while (ksPValue(1.0, needed, needed)>=threshold) {
+                needed += 1;
+            }
+            throw new IllegalArgumentException(String.format("Too few replicates: with %d replicates no test can reach "
+                    + "p < %.2e. Please run at least %d replicates", replicates, threshold, needed));
+        }
+
+        ExecutorService pool = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+        boolean allPassed = true;
+        try {
+            // Run the reference replicates once and compare every candidate against them
+            int[][][] reference = runReplicates(CommunityEngine.class.getName(), initial, totalDays, replicates, seed, pool);
+            for (String name : candidates) {
+                // Candidates use seeds that do not overlap with the reference seeds
+                int[][][] candidate;
+                try {
+                    candidate = runReplicates(name, initial, totalDays, replicates, seed+replicates, pool);
+                } catch (ReflectiveOperationException | ClassCastException | ExecutionException e) {
+                    // Report the candidate as failed and carry on with the others
+                    Throwable cause = e instanceof ExecutionException ? e.getCause() : e;
+                    System.out.println(String.format("Candidate %s: FAIL (could not run: %s)", name, cause));
+                    allPassed = false;
+                    continue;
+                }
+                allPassed &= report(name, reference, candidate);
+            }
+        } finally {
+            pool.shutdown();
+        }
+
+        if (!allPassed) {
+            System.exit(1);
+        }
+    }
+
+    /** Runs 'replicates' simulations of 'totalDays' days with the engine of class 'engineName' in parallel on
+     * 'pool'. Replicate r is seeded with 'seed'+r. Each replicate creates its own instance of the engine, so engines
+     * may keep state between calls of 'simulate'. Returns the trajectory of each replicate **/
+    public static int[][][] runReplicates(String engineName, int[] initial, int totalDays, int replicates, long seed,
+            ExecutorService pool) throws ReflectiveOperationException, InterruptedException, ExecutionException {
+        // Check preconditions
+        assert (engineName!=null && pool!=null);
+        assert (replicates>=1);
+
+        // Fail before running any replicate if the engine has no public constructor without arguments
+        Class<? extends Engine> engineClass = Class.forName(engineName).asSubclass(Engine.class);
+        engineClass.getConstructor();
+
+        List<Callable<int[][]>> tasks = new ArrayList<>();
+        for (int r=0; r<replicates; ++r) {
+            long replicateSeed = seed+r;
+            tasks.add(() -> engineClass.getConstructor().newInstance().simulate(initial, totalDays, replicateSeed));
+        }
+
+        int[][][] trajectories = new int[replicates][][];
+        List<Future<int[][]>> results = pool.invokeAll(tasks);
+        for (int r=0; r<replicates; ++r) {
+            trajectories[r] = results.get(r).get();
+        }
+        return trajectories;
+    }
+
+    /** Compares the trajectories 'candidate' of the candidate engine 'name' with the trajectories 'reference' of
+     * the reference engine and prints a report. Returns true if the candidate passes. A candidate whose trajectories
+     * do not all have one row of Engine.METRICS values for each day of the reference fails **/
+    public static boolean report(String name, int[][][] reference, int[][][] candidate) {
+        // Check preconditions
+        assert (reference.length>0);
+
+        int days = reference[0].length;
+        String malformed = checkShape(candidate, days);
+        if (malformed!=null) {
+            System.out.println(String.format("Candidate %s: FAIL (malformed output: %s)", name, malformed));
+            return false;
+        }
+
+        double threshold = threshold(days);
+        boolean passed = true;
+
+        System.out.println(String.format("Candidate %s: %d reference and %d candidate replicates, %d tests at p < %.2e, "
+                + "|d| <= %.1f", name, reference.length, candidate.length, Engine.METRICS*days + 2, threshold, MAX_COHENS_D));
+        if (ksPValue(1.0, reference.length, candidate.length)>=threshold) {
+            System.out.println(String.format("Candidate %s: FAIL (too few replicates for any test to reject)", name));
+            return false;
+        }
+
+        for (int m=0; m<Engine.METRICS; ++m) {
+            // Find the day where the two engines differ the most and the day with the largest effect size
+            int rejected = 0;
+            int worstDay = 0;
+            Comparison worst = null;
+            int largestDay = 0;
+            Comparison largest = null;
+            for (int d=0; d<days; ++d) {
+                Comparison c = new Comparison(column(reference, d, m), column(candidate, d, m));
+                if (c.differs(threshold)) {
+                    rejected += 1;
+                }
+                if (worst==null || c.pValue<worst.pValue) {
+                    worst = c;
+                    worstDay = d;
+                }
+                if (largest==null || Math.abs(c.cohensD)>Math.abs(largest.cohensD)) {
+                    largest = c;
+                    largestDay = d;
+                }
+            }
+            passed &= rejected==0;
+            System.out.println(String.format("  %-9s %s: %d of %d days differ; worst day %d (D=%.3f, p=%.2e, d=%.3f); "
+                    + "largest effect day %d (d=%.3f, means %.1f vs %.1f)", METRIC_NAMES[m], rejected==0 ? "PASS" : "FAIL",
+                    rejected, days, worstDay, worst.ks, worst.pValue, worst.cohensD, largestDay, largest.cohensD,
+                    largest.referenceMean, largest.candidateMean));
+        }
+
+        // Compare the size and the day of the peak of infections
+        double[][] referencePeaks = peaks(reference);
+        double[][] candidatePeaks = peaks(candidate);
+        String[] peakNames = {"peak size", "peak day"};
+        for (int p=0; p<2; ++p) {
+            Comparison c = new Comparison(referencePeaks[p], candidatePeaks[p]);
+            boolean ok = !c.differs(threshold);
+            passed &= ok;
+            System.out.println(String.format("  %-9s %s: D=%.3f, p=%.2e, d=%.3f, means %.1f vs %.1f", peakNames[p],
+                    ok ? "PASS" : "FAIL", c.ks, c.pValue, c.cohensD, c.referenceMean, c.candidateMean));
+        }
+
+        System.out.println(String.format("Candidate %s: %s", name, passed ? "PASS" : "FAIL"));
+        return passed;
+    }
+
+    /** Returns a description of the first trajectory in 'trajectories' that does not have 'days' rows of
+     * Engine.METRICS values each, or null if all of them do */
+    private static String checkShape(int[][][] trajectories, int days) {
+        if (trajectories==null || trajectories.length==0) {
+            return "no replicates";
+        }
+        for (int r=0; r<trajectories.length; ++r) {
+            if (trajectories[r]==null || trajectories[r].length!=days) {
+                return String.format("replicate %d has %s rows instead of %d", r,
+                        trajectories[r]==null ? "no" : String.valueOf(trajectories[r].length), days);
+            }
+            for (int d=0; d<days; ++d) {
+                if (trajectories[r][d]==null || trajectories[r][d].length!=Engine.METRICS) {
+                    return String.format("day %d of replicate %d does not have %d values", d, r, Engine.METRICS);
+                }
+            }
+        }
+        return null;
+    }
+
+    /** Returns the Bonferroni-corrected significance level of each test for trajectories of 'days' days: one test
+     * for each metric on each day, plus the peak size and the peak day */
+    private static double threshold(int days) {
+        return ALPHA/(Engine.METRICS*days + 2);
+    }
+
+    /** Returns the value of metric 'metric' on day 'day' of every trajectory in 'trajectories' */
+    private static double[] column(int[][][] trajectories, int day, int metric) {
+        double[] values = new double[trajectories.length];
+        for (int r=0; r<trajectories.length; ++r) {
+            values[r] = trajectories[r][day][metric];
+        }
+        return values;
+    }
+
+    /** Returns the largest number of infected humans of every trajectory in 'trajectories' in the first row and
+     * the first day on which it was reached in the second row */
+    private static double[][] peaks(int[][][] trajectories) {
+        double[][] peaks = new double[2][trajectories.length];
+        for (int r=0; r<trajectories.length; ++r) {
+            int peakDay = 0;
+            for (int d=1; d<trajectories[r].length; ++d) {
+                if (trajectories[r][d][Engine.INFECTED]>trajectories[r][peakDay][Engine.INFECTED]) {
+                    peakDay = d;
+                }
+            }
+            peaks[0][r] = trajectories[r][peakDay][Engine.INFECTED];
+            peaks[1][r] = peakDay;
+        }
+        return peaks;
+    }
+
+    /** Returns the two-sample Kolmogorov-Smirnov statistic of the samples 'a' and 'b'. Tied values are handled
+     * by stepping both empirical distribution functions past a value before comparing them **/
+    public static double ksStatistic(double[] a, double[] b) {
+        double[] x = a.clone();
+        double[] y = b.clone();
+        Arrays.sort(x);
+        Arrays.sort(y);
+
+        double d = 0;
+        int i = 0;
+        int j = 0;
+        while (i<x.length && j<y.length) {
+            double v = Math.min(x[i], y[j]);
+            while (i<x.length && x[i]==v) {
+                i += 1;
+            }
+            while (j<y.length && y[j]==v) {
+                j += 1;
+            }
+            d = Math.max(d, Math.abs((double) i/x.length - (double) j/y.length));
+        }
+        return d;
+    }
+
+    /** Returns the asymptotic p-value of a two-sample Kolmogorov-Smirnov statistic 'd' for samples of sizes 'n'
+     * and 'm', using the Kolmogorov distribution with the small sample correction of Stephens (1970) **/
+    public static double ksPValue(double d, int n, int m) {
+        double en = Math.sqrt((double) n*m/(n+m));
+        double lambda = (en + 0.12 + 0.11/en)*d;
+        if (lambda<0.2) {
+            // The series converges slowly here and its value is 1 to double precision
+            return 1.0;
+        }
+        double sum = 0;
+        double sign = 1;
+        for (int k=1; k<=100; ++k) {
+            double term = sign*Math.exp(-2.0*k*k*lambda*lambda);
+            sum += term;
+            if (Math.abs(term)<1e-12) {
+                break;
+            }
+            sign = -sign;
+        }
+        return Math.max(0.0, Math.min(1.0, 2.0*sum));
+    }
+
+    /** Returns Cohen's d of sample 'b' relative to sample 'a'. Returns 0 if both samples are constant and equal
+     * and an infinite value if both samples are constant but different **/
+    public static double cohensD(double[] a, double[] b) {
+        double meanA = mean(a);
+        double meanB = mean(b);
+        double ssA = 0;
+        for (double v : a) {
+            ssA += (v-meanA)*(v-meanA);
+        }
+        double ssB = 0;
+        for (double v : b) {
+            ssB += (v-meanB)*(v-meanB);
+        }
+        int dof = a.length + b.length - 2;
+        double pooled = dof>0 ? Math.sqrt((ssA+ssB)/dof) : 0;
+        if (pooled==0) {
+            return meanA==meanB ? 0 : Math.copySign(Double.POSITIVE_INFINITY, meanB-meanA);
+        }
+        return (meanB-meanA)/pooled;
+    }
+
+    /** Returns the mean of 'values' */
+    private static double mean(double[] values) {
+        double sum = 0;
+        for (double v : values) {
+            sum += v;
+        }
+        return sum/values.length;
+    }
+
+}